@@ -0,0 +1,166 @@
+package com.example.blockpit.benchmark;
+
+import com.example.blockpit.BlockpitExcelCreator;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Measured conversions of one corpus, run in its own JVM by {@link ThroughputBenchmark}.
+ *
+ * Unrecorded warm-up runs continue until the run time is stable. Then the
+ * conversion is timed {@code benchmark.repetitions} times without a recording,
+ * so JFR overhead does not count against throughput. Allocation is measured
+ * afterwards in {@code benchmark.allocationRuns} separate runs, each with its
+ * own JFR recording.
+ *
+ * Usage: {@code BenchmarkRun <corpus-folder> <output-file.xlsx> <recording.jfr> <result.properties>}
+ */
+public class BenchmarkRun {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: BenchmarkRun <corpus-folder> <output-file.xlsx> <recording.jfr> <result.properties>");
+            System.exit(2);
+        }
+
+        Path corpus = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        Path jfrFile = Paths.get(args[2]);
+        Path resultFile = Paths.get(args[3]);
+        long messages = countMails(corpus);
+
+        int warmups = Integer.getInteger("benchmark.warmups", 3);
+        int maxWarmups = Math.max(warmups, Integer.getInteger("benchmark.maxWarmups", 15));
+        int repetitions = Math.max(1, Integer.getInteger("benchmark.repetitions", 5));
+        int allocationRuns = Math.max(1, Integer.getInteger("benchmark.allocationRuns", 2));
+
+        // Warm up until the JIT has settled: at least warmups runs, then until two runs in a row are within 5 %
+        long previousNanos = Long.MAX_VALUE;
+        int warmupRuns = 0;
+        while (warmupRuns < maxWarmups) {
+            long start = System.nanoTime();
+            convert(corpus, output);
+            long elapsedNanos = System.nanoTime() - start;
+            warmupRuns++;
+            boolean stable = Math.abs(elapsedNanos - previousNanos) <= 0.05 * previousNanos;
+            previousNanos = elapsedNanos;
+            if (warmupRuns >= warmups && stable) {
+                break;
+            }
+        }
+
+        double[] throughputs = new double[repetitions];
+        long[] elapsedMillis = new long[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            convert(corpus, output);
+            long elapsedNanos = System.nanoTime() - start;
+            throughputs[i] = messages / (elapsedNanos / 1e9);
+            elapsedMillis[i] = elapsedNanos / 1_000_000;
+        }
+
+        long minAllocatedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < allocationRuns; i++) {
+            try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+                // Every new TLAB and every allocation outside a TLAB together add up to all allocated bytes
+                recording.enable("jdk.ObjectAllocationInNewTLAB").withoutStackTrace();
+                recording.enable("jdk.ObjectAllocationOutsideTLAB").withoutStackTrace();
+                recording.start();
+                convert(corpus, output);
+                recording.stop();
+                Files.deleteIfExists(jfrFile);
+                recording.dump(jfrFile); // Only the last run's recording is kept
+            }
+            minAllocatedBytes = Math.min(minAllocatedBytes, allocatedBytes(jfrFile));
+        }
+
+        Arrays.sort(throughputs);
+        Arrays.sort(elapsedMillis);
+        Properties result = new Properties();
+        result.setProperty("messages", Long.toString(messages));
+        result.setProperty("warmups", Integer.toString(warmupRuns));
+        result.setProperty("repetitions", Integer.toString(repetitions));
+        result.setProperty("allocationRuns", Integer.toString(allocationRuns));
+        result.setProperty("elapsedMillis", Long.toString(elapsedMillis[repetitions / 2]));
+        // Median throughput and minimum allocation are the least noisy of the runs
+        result.setProperty("messagesPerSecond", Double.toString(median(throughputs)));
+        result.setProperty("messagesPerSecondMin", Double.toString(throughputs[0]));
+        result.setProperty("messagesPerSecondMax", Double.toString(throughputs[repetitions - 1]));
+        result.setProperty("allocatedBytes", Long.toString(minAllocatedBytes));
+        result.setProperty("bytesPerMessage",
+                Double.toString(messages == 0 ? 0 : (double) minAllocatedBytes / messages));
+        result.setProperty("peakRssBytes", Long.toString(peakRssBytes()));
+        try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+            result.store(writer, "Benchmark result for " + corpus);
+        }
+    }
+
+    private static void convert(Path corpus, Path output) throws IOException {
+        Files.deleteIfExists(output);
+        BlockpitExcelCreator.main(new String[] { corpus.toString(), output.toString() });
+        if (!Files.exists(output)) {
+            System.err.println("Conversion did not create " + output);
+            System.exit(1);
+        }
+    }
+
+    private static double median(double[] sorted) {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static long countMails(Path corpus) throws IOException {
+        try (Stream<Path> files = Files.list(corpus)) {
+            return files.filter(file -> file.getFileName().toString().toLowerCase().endsWith(".eml")).count();
+        }
+    }
+
+    private static long allocatedBytes(Path jfrFile) throws IOException {
+        long total = 0;
+        try (RecordingFile recordingFile = new RecordingFile(jfrFile)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String name = event.getEventType().getName();
+                if (name.equals("jdk.ObjectAllocationInNewTLAB")) {
+                    total += event.getLong("tlabSize");
+                } else if (name.equals("jdk.ObjectAllocationOutsideTLAB")) {
+                    total += event.getLong("allocationSize");
+                }
+            }
+        }
+        return total;
+    }
+
+    // High-water mark of the resident set; only available on Linux, -1 elsewhere
+    private static long peakRssBytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(status);
+            for (String line : lines) {
+                if (line.startsWith("VmHWM:")) {
+                    String kilobytes = line.substring("VmHWM:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading peak RSS: " + e.getMessage());
+        }
+        return -1;
+    }
+}
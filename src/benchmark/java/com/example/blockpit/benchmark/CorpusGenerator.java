@@ -0,0 +1,135 @@
+package com.example.blockpit.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes a reproducible corpus of synthetic Robinhood mails.
+ *
+ * The same size always produces the same files. The mix roughly follows a real
+ * archive: mostly trades and wallet withdrawals, plus skipped and foreign mails.
+ */
+class CorpusGenerator {
+
+    // Bump when the templates change so cached corpora are regenerated
+    private static final String VERSION = "1";
+    private static final String MARKER = ".corpus-complete";
+    private static final long SEED = 20240101L;
+
+    private static final String[] ASSETS = { "BTC", "ETH", "SOL", "DOGE", "USDC", "ADA" };
+    private static final String[] MONTHS = { "Jan", "February", "Mar", "April", "May", "Jun", "July", "Aug",
+            "September", "Oct", "Nov", "December" };
+
+    private CorpusGenerator() {
+    }
+
+    /** Returns the corpus folder, generating it first if it is missing or outdated. */
+    static Path ensureCorpus(Path root, int size) throws IOException {
+        Path folder = root.resolve("corpus-" + size);
+        Path marker = folder.resolve(MARKER);
+        if (Files.exists(marker) && VERSION.equals(Files.readString(marker).trim())) {
+            return folder;
+        }
+
+        System.out.println("Generating corpus of " + size + " mails in " + folder);
+        Files.createDirectories(folder);
+        Random random = new Random(SEED + size);
+        for (int i = 0; i < size; i++) {
+            Path file = folder.resolve(String.format(Locale.ROOT, "mail-%06d.eml", i));
+            Files.write(file, createMail(random, i).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.writeString(marker, VERSION);
+        return folder;
+    }
+
+    private static String createMail(Random random, int index) {
+        String asset = ASSETS[random.nextInt(ASSETS.length)];
+        int kind = random.nextInt(100);
+
+        if (kind < 45) {
+            return mail(robinhood(), "Your " + asset + " order was filled",
+                    "Your order to buy " + asset + " was filled. Amount purchased: " + amount(random) + " " + asset
+                            + " Final cost: " + money(random) + " Date completed: " + date(random)
+                            + " Thanks for using Robinhood.");
+        } else if (kind < 65) {
+            return mail(robinhood(), "Your " + asset + " transfer is on its way",
+                    "You sent " + asset + " on " + date(random) + ", and paid a network fee of " + amount(random)
+                            + " " + asset + ". The wallet address " + hex(random, 34) + " will receive "
+                            + amount(random) + " " + asset + ". Your transaction ID is " + hex(random, 64) + ".");
+        } else if (kind < 80) {
+            return mail(robinhood(), "Your " + asset + " order was placed",
+                    "Your order to buy " + asset + " was placed. We will let you know once it is filled.");
+        } else if (kind < 85) {
+            return mail(robinhood(), "Your deposit has completed",
+                    "Your deposit has completed Amount: " + money(random) + " From: Bank account " + index);
+        } else if (kind < 90) {
+            return mail(robinhood(), "Your withdrawal is in progress",
+                    "Your withdrawal is in progress Amount: " + money(random) + " To: DE" + digits(random, 20));
+        } else if (kind < 95) {
+            return mail(robinhood(), "You earned a reward",
+                    "You received $" + amount(random) + " in USDC for holding USDC in " + MONTHS[random.nextInt(12)]);
+        }
+        return mail("Newsletter <news@example.com>", "Weekly market update",
+                "Markets moved a lot this week. Read our analysis of " + asset + " and more.");
+    }
+
+    private static String robinhood() {
+        return "Robinhood <notifications@robinhood.com>";
+    }
+
+    private static String mail(String from, String subject, String text) {
+        return "From: " + from + "\r\n"
+                + "To: user@example.com\r\n"
+                + "Subject: " + subject + "\r\n"
+                + "Date: Fri, 12 Jan 2024 14:05:00 +0100\r\n"
+                + "MIME-Version: 1.0\r\n"
+                + "Content-Type: multipart/alternative; boundary=\"part\"\r\n"
+                + "\r\n"
+                + "--part\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: 8bit\r\n"
+                + "\r\n"
+                + text + "\r\n"
+                + "--part\r\n"
+                + "Content-Type: text/html; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: 8bit\r\n"
+                + "\r\n"
+                + "<html><body><table><tr><td><p>" + text + "</p></td></tr></table></body></html>\r\n"
+                + "--part--\r\n";
+    }
+
+    private static String date(Random random) {
+        return (1 + random.nextInt(28)) + " " + MONTHS[random.nextInt(12)] + " " + (2022 + random.nextInt(3))
+                + " at " + String.format(Locale.ROOT, "%02d:%02d", random.nextInt(24), random.nextInt(60)) + " "
+                + (random.nextBoolean() ? "CET" : "CEST");
+    }
+
+    private static String amount(Random random) {
+        return String.format(Locale.ROOT, "%d.%05d", random.nextInt(50), random.nextInt(100000));
+    }
+
+    private static String money(Random random) {
+        String value = String.format(Locale.ROOT, "%d,%02d", 1 + random.nextInt(5000), random.nextInt(100));
+        return random.nextBoolean() ? "€" + value : value + " €";
+    }
+
+    private static String hex(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return builder.toString();
+    }
+
+    private static String digits(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(random.nextInt(10));
+        }
+        return builder.toString();
+    }
+}
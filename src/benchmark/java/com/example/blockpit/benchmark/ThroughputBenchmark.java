@@ -0,0 +1,206 @@
+package com.example.blockpit.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * End-to-end throughput and allocation benchmark for the input-folder-to-Excel conversion.
+ *
+ * Each corpus size runs in a fresh JVM, so peak RSS and allocation counts are
+ * not mixed between sizes. Within that JVM the conversion is warmed up, timed
+ * in repeated runs and then measured in separate runs with JFR allocation
+ * recordings. The median throughput and the minimum
+ * allocation per message are compared against a stored baseline. The process
+ * exits with 1 if either regressed past the configured threshold, or if the
+ * baseline has no value for any measured size. Metrics without a baseline value
+ * are listed in the verdict as not compared.
+ *
+ * Settings (system properties):
+ * <ul>
+ * <li>{@code benchmark.sizes}: Comma separated corpus sizes (default 1000,10000,100000)</li>
+ * <li>{@code benchmark.dir}: Folder for corpora, recordings and outputs (default target/benchmark)</li>
+ * <li>{@code benchmark.baseline}: Baseline file (default benchmark/baseline.properties)</li>
+ * <li>{@code benchmark.updateBaseline}: Store the results as the new baseline instead of comparing</li>
+ * <li>{@code benchmark.warmups}: Minimum unmeasured runs before the measurement (default 3); warm-up
+ * continues until two runs in a row differ by at most 5 %, up to {@code benchmark.maxWarmups} (default 15)</li>
+ * <li>{@code benchmark.repetitions}: Timed runs per size (default 5)</li>
+ * <li>{@code benchmark.allocationRuns}: Runs with an allocation recording per size (default 2)</li>
+ * <li>{@code benchmark.maxThroughputDrop}: Allowed drop in messages per second (default 0.10)</li>
+ * <li>{@code benchmark.maxAllocationGrowth}: Allowed growth in bytes per message (default 0.10)</li>
+ * <li>{@code benchmark.jvmArgs}: Extra JVM options for the measured runs, separated by spaces. Conversion
+ * settings are passed this way too, e.g. {@code -Dpipeline.decode.threads=4}</li>
+ * </ul>
+ */
+public class ThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = parseSizes(System.getProperty("benchmark.sizes", "1000,10000,100000"));
+        Path workDir = Paths.get(System.getProperty("benchmark.dir", "target/benchmark"));
+        Path baselineFile = Paths.get(System.getProperty("benchmark.baseline", "benchmark/baseline.properties"));
+        boolean updateBaseline = Boolean.getBoolean("benchmark.updateBaseline");
+        double maxThroughputDrop = Double.parseDouble(System.getProperty("benchmark.maxThroughputDrop", "0.10"));
+        double maxAllocationGrowth = Double.parseDouble(System.getProperty("benchmark.maxAllocationGrowth", "0.10"));
+
+        Files.createDirectories(workDir);
+        Properties baseline = load(baselineFile);
+        Properties results = new Properties();
+        List<String> regressions = new ArrayList<>();
+        List<String> notCompared = new ArrayList<>();
+
+        for (int size : sizes) {
+            Path corpus = CorpusGenerator.ensureCorpus(workDir, size);
+            Properties result = runIsolated(workDir, corpus, size);
+
+            double throughput = Double.parseDouble(result.getProperty("messagesPerSecond"));
+            double bytesPerMessage = Double.parseDouble(result.getProperty("bytesPerMessage"));
+            long peakRss = Long.parseLong(result.getProperty("peakRssBytes"));
+            results.setProperty(size + ".messagesPerSecond", format(throughput));
+            results.setProperty(size + ".bytesPerMessage", format(bytesPerMessage));
+            results.setProperty(size + ".peakRssBytes", Long.toString(peakRss));
+
+            System.out.println(String.format(Locale.ROOT,
+                    "%7d mails: %10.1f msg/s (%.1f-%.1f over %s runs, %s warm-ups), %12.0f bytes/msg, peak RSS %6d MB, %s ms",
+                    size, throughput, Double.parseDouble(result.getProperty("messagesPerSecondMin")),
+                    Double.parseDouble(result.getProperty("messagesPerSecondMax")),
+                    result.getProperty("repetitions"), result.getProperty("warmups"), bytesPerMessage, peakRss / (1024 * 1024),
+                    result.getProperty("elapsedMillis")));
+
+            if (!updateBaseline) {
+                compare(baseline, size, "messagesPerSecond", throughput, maxThroughputDrop, false, regressions,
+                        notCompared);
+                compare(baseline, size, "bytesPerMessage", bytesPerMessage, maxAllocationGrowth, true, regressions,
+                        notCompared);
+            }
+        }
+
+        if (updateBaseline) {
+            Properties merged = new Properties();
+            merged.putAll(baseline);
+            merged.putAll(results);
+            store(merged, baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+
+        if (!regressions.isEmpty()) {
+            regressions.forEach(regression -> System.err.println("Regression: " + regression));
+            System.exit(1);
+        }
+        // Without a stored value nothing was checked, which must not pass as "no regression"
+        if (notCompared.size() == 2 * sizes.size()) {
+            System.err.println("No baseline in " + baselineFile + " for the measured sizes, nothing was compared."
+                    + " Record one with -Dbenchmark.updateBaseline=true");
+            System.exit(1);
+        }
+        if (!notCompared.isEmpty()) {
+            System.out.println("No regression in the compared metrics against " + baselineFile + ", not compared: "
+                    + String.join(", ", notCompared));
+            return;
+        }
+        System.out.println("No regression against " + baselineFile);
+    }
+
+    // Measures one size in a new JVM so that peak RSS and JIT state start from scratch
+    private static Properties runIsolated(Path workDir, Path corpus, int size) throws IOException,
+            InterruptedException {
+        Path output = workDir.resolve("output-" + size + ".xlsx");
+        Path jfrFile = workDir.resolve("run-" + size + ".jfr");
+        Path resultFile = workDir.resolve("result-" + size + ".properties");
+        Path logFile = workDir.resolve("run-" + size + ".log");
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(resultFile);
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dfile.encoding=UTF-8");
+        for (String option : System.getProperty("benchmark.jvmArgs", "").trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        for (String key : Arrays.asList("benchmark.warmups", "benchmark.maxWarmups", "benchmark.repetitions",
+                "benchmark.allocationRuns")) {
+            if (System.getProperty(key) != null) {
+                command.add("-D" + key + "=" + System.getProperty(key));
+            }
+        }
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BenchmarkRun.class.getName());
+        command.add(corpus.toString());
+        command.add(output.toString());
+        command.add(jfrFile.toString());
+        command.add(resultFile.toString());
+
+        // The conversion logs every file; keep that out of the benchmark report
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || !Files.exists(resultFile)) {
+            throw new IllegalStateException("Benchmark run for " + size + " mails failed with exit code " + exitCode
+                    + ", see " + logFile);
+        }
+        return load(resultFile);
+    }
+
+    // Records a regression if the metric moved in the bad direction by more than the allowed fraction
+    private static void compare(Properties baseline, int size, String metric, double actual, double allowedChange,
+            boolean higherIsWorse, List<String> regressions, List<String> notCompared) {
+        String expectedValue = baseline.getProperty(size + "." + metric);
+        if (expectedValue == null) {
+            notCompared.add(size + "." + metric);
+            return;
+        }
+        double expected = Double.parseDouble(expectedValue);
+        double change = expected == 0 ? 0 : (actual - expected) / expected;
+        boolean regressed = higherIsWorse ? change > allowedChange : change < -allowedChange;
+        if (regressed) {
+            regressions.add(String.format(Locale.ROOT, "%s.%s is %s, baseline %s (%+.1f%%)", size, metric,
+                    format(actual), expectedValue, change * 100));
+        }
+    }
+
+    private static List<Integer> parseSizes(String value) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : value.split(",")) {
+            if (!size.trim().isEmpty()) {
+                sizes.add(Integer.parseInt(size.trim()));
+            }
+        }
+        return sizes;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, Path file) throws IOException {
+        File parent = file.toAbsolutePath().getParent().toFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Benchmark baseline; messagesPerSecond is machine specific, update with"
+                    + " -Dbenchmark.updateBaseline=true");
+        }
+    }
+}
@@ -9,11 +9,16 @@ import javax.mail.internet.MimeMessage;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 public class BlockpitExcelCreator {
 
     private static final String INTEGRATION_NAME = "Robinhood";
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm")
+            .withZone(ZoneOffset.UTC);
 
     public static void main(String[] args) {
         if (args.length != 2) {
@@ -34,66 +39,8 @@ public class BlockpitExcelCreator {
             List<RowData> rowDataList = new ArrayList<>(); // List for sorting rows
 
             if (files != null) {
-                for (File file : files) {
-                    try (InputStream fileStream = new FileInputStream(file)) {
-                        InputStreamReader reader = new InputStreamReader(fileStream, StandardCharsets.UTF_8);
-                        StringWriter writer = new StringWriter();
-
-                        // Kopiere den Inhalt in einen String
-                        char[] buffer = new char[8192];
-                        int len;
-                        while ((len = reader.read(buffer)) != -1) {
-                            writer.write(buffer, 0, len);
-                        }
-
-                        // Konvertiere den String zurück in einen ByteArrayInputStream für MimeMessage
-                        InputStream emlStream = new ByteArrayInputStream(
-                                writer.toString().getBytes(StandardCharsets.UTF_8));
-
-                        // Erstelle MimeMessage mit UTF-8 kodiertem Stream
-                        Properties props = new Properties();
-                        Session session = Session.getDefaultInstance(props, null);
-                        MimeMessage message = new MimeMessage(session, emlStream);
-
-                        String subject = message.getSubject();
-                        String content = htmlToPlainText(getTextFromMessage(message));
-                        String sentDate = formatDateToUTC(message.getSentDate());
-
-                        // Debugging-Logs
-                        System.out.println("Processing File: " + file.getName());
-
-                        String messageType = determineMessageType(subject, content);
-                        if (messageType.equals("Skip")) {
-                            System.out.println("Skipped processing for subject: " + subject);
-                            continue; // Skip processing for this file
-                        }
-
-                        switch (messageType) {
-                            case "Gift-Received":
-                                parseReceivedContent(rowDataList, content, sentDate, messageType);
-                                break;
-                            case "Deposit":
-                                parseDepositContent(rowDataList, content, sentDate, messageType);
-                                break;
-                            case "WithdrawalToBank":
-                                parseWithdrawalToBankContent(rowDataList, content, sentDate, "Withdrawal");
-                                break;
-                            case "WithdrawalToWallet":
-                                parseWithdrawalToWalletContent(rowDataList, content, sentDate, "Withdrawal");
-                                break;
-                            case "Trade":
-                                parseTradeContent(rowDataList, content, sentDate, messageType);
-                                break;
-                            case "Staking":
-                                parseStakingContent(rowDataList, content, sentDate, messageType);
-                                break;
-                            default:
-                                System.out.println("Unrecognized message type for subject: " + subject);
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error processing file: " + file.getName() + " - " + e.getMessage());
-                    }
-                }
+                // Read, decode and extract in overlapping stages
+                rowDataList = new MailPipeline(new File(outputFile + ".quarantine")).run(files);
             }
 
             // Sort rows by Date (UTC)
@@ -139,9 +86,68 @@ public class BlockpitExcelCreator {
 
         } catch (IOException e) {
             System.err.println("Error writing Excel file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Processing interrupted: " + e.getMessage());
         }
     }
 
+    static MailPipeline.DecodedMail decodeMail(MailPipeline.RawMail raw) throws Exception {
+        // Kopiere den Inhalt in einen String und zurück, damit MimeMessage UTF-8 kodierte Bytes erhält
+        String text = new String(raw.data, StandardCharsets.UTF_8);
+        InputStream emlStream = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+
+        // Erstelle MimeMessage mit UTF-8 kodiertem Stream
+        Properties props = new Properties();
+        Session session = Session.getDefaultInstance(props, null);
+        MimeMessage message = new MimeMessage(session, emlStream);
+
+        String subject = message.getSubject();
+        String content = htmlToPlainText(getTextFromMessage(message));
+        String sentDate = formatDateToUTC(message.getSentDate());
+        return new MailPipeline.DecodedMail(raw.sequence, raw.file, subject, content, sentDate);
+    }
+
+    static List<RowData> extractRows(MailPipeline.DecodedMail mail, ExtractionGuard.Budget budget) {
+        String subject = mail.subject;
+        String content = mail.content;
+        String sentDate = mail.sentDate;
+        List<RowData> rowDataList = new ArrayList<>();
+
+        // Debugging-Logs
+        System.out.println("Processing File: " + mail.file.getName());
+
+        String messageType = determineMessageType(subject, content);
+        if (messageType.equals("Skip")) {
+            System.out.println("Skipped processing for subject: " + subject);
+            return rowDataList; // Skip processing for this file
+        }
+
+        switch (messageType) {
+            case "Gift-Received":
+                parseReceivedContent(rowDataList, budget, content, sentDate, messageType);
+                break;
+            case "Deposit":
+                parseDepositContent(rowDataList, budget, content, sentDate, messageType);
+                break;
+            case "WithdrawalToBank":
+                parseWithdrawalToBankContent(rowDataList, budget, content, sentDate, "Withdrawal");
+                break;
+            case "WithdrawalToWallet":
+                parseWithdrawalToWalletContent(rowDataList, content, sentDate, "Withdrawal");
+                break;
+            case "Trade":
+                parseTradeContent(rowDataList, content, sentDate, messageType);
+                break;
+            case "Staking":
+                parseStakingContent(rowDataList, budget, content, sentDate, messageType);
+                break;
+            default:
+                System.out.println("Unrecognized message type for subject: " + subject);
+        }
+        return rowDataList;
+    }
+
     private static void createHeaderRow(Sheet sheet) {
         String[] headers = {
                 "Date (UTC)", "Integration Name", "Label", "Outgoing Asset", "Outgoing Amount",
@@ -215,6 +221,10 @@ public class BlockpitExcelCreator {
         return utcFormat.format(date);
     }
 
+    private static String formatInstantToUTC(Instant instant) {
+        return UTC_FORMAT.format(instant);
+    }
+
     private static String htmlToPlainText(String html) {
         return Jsoup.parse(new String(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)).text().trim();
     }
@@ -226,7 +236,7 @@ public class BlockpitExcelCreator {
         if (content.contains("You received") && content.contains("for holding")) {
             return "Staking";
         }
-        if (subject.matches("Your .* order was placed")) {
+        if (isPlacedOrderSubject(subject)) {
             return "Skip";
         }
         if (subject.matches("Your .* order was filled")) {
@@ -244,10 +254,16 @@ public class BlockpitExcelCreator {
         return "Unknown";
     }
 
+    // Auch vom HeaderPrefilter genutzt, um solche Mails vor dem Dekodieren zu überspringen
+    static boolean isPlacedOrderSubject(String subject) {
+        return subject.matches("Your .* order was placed");
+    }
+
     private static void parseReceivedContent(
-            List<RowData> rowDataList, String content, String sentDate, String messageType) {
+            List<RowData> rowDataList, ExtractionGuard.Budget budget, String content, String sentDate,
+            String messageType) {
         // Extrahiere Betrag und Asset
-        String[] extractedData = extractDataFromReceivedType(content);
+        String[] extractedData = extractDataFromReceivedType(budget, content);
         String amount = extractedData[0];
         String asset = extractedData[1];
 
@@ -260,13 +276,15 @@ public class BlockpitExcelCreator {
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromReceivedType(String content) {
-        // Regex für Betrag und Asset
-        String regex = "You (just )?received\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$)\\s*in\\s*([A-Za-z0-9]+)";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex, java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher matcher = pattern.matcher(content);
+    // Regex für Betrag und Asset
+    private static final java.util.regex.Pattern RECEIVED_PATTERN = java.util.regex.Pattern.compile(
+            "You (just )?received\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$)\\s*in\\s*([A-Za-z0-9]+)",
+            java.util.regex.Pattern.DOTALL);
+
+    private static String[] extractDataFromReceivedType(ExtractionGuard.Budget budget, String content) {
+        java.util.regex.Matcher matcher = budget.find(RECEIVED_PATTERN, content, "You");
 
-        if (matcher.find()) {
+        if (matcher != null) {
             String amount = matcher.group(2).trim(); // Betrag inkl. Währung
             String asset = matcher.group(3).trim(); // Kryptowährung
             return new String[] { amount, asset };
@@ -278,8 +296,9 @@ public class BlockpitExcelCreator {
     }
 
     private static void parseStakingContent(
-            List<RowData> rowDataList, String content, String sentDate, String messageType) {
-        String[] extractedData = extractDataFromStakingType(content); // Extrahiere relevanten Inhalt
+            List<RowData> rowDataList, ExtractionGuard.Budget budget, String content, String sentDate,
+            String messageType) {
+        String[] extractedData = extractDataFromStakingType(budget, content); // Extrahiere relevanten Inhalt
         String amount = extractedData[0];
         String asset = extractedData[1];
         String period = extractedData[2];
@@ -291,13 +310,15 @@ public class BlockpitExcelCreator {
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromStakingType(String content) {
-        // Regex für beide Währungspositionen
-        String regex = "You (just )?received\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$)\\s*in\\s*([A-Za-z0-9]+)\\s*for holding\\s*\\3\\s*in\\s*(\\w+)";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex, java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher matcher = pattern.matcher(content);
+    // Regex für beide Währungspositionen
+    private static final java.util.regex.Pattern STAKING_PATTERN = java.util.regex.Pattern.compile(
+            "You (just )?received\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$)\\s*in\\s*([A-Za-z0-9]+)\\s*for holding\\s*\\3\\s*in\\s*(\\w+)",
+            java.util.regex.Pattern.DOTALL);
 
-        if (matcher.find()) {
+    private static String[] extractDataFromStakingType(ExtractionGuard.Budget budget, String content) {
+        java.util.regex.Matcher matcher = budget.find(STAKING_PATTERN, content, "You");
+
+        if (matcher != null) {
             String amount = matcher.group(2).trim(); // Betrag (inkl. Währung)
             String asset = matcher.group(3).trim(); // Kryptowährung
             String period = matcher.group(4).trim(); // Zeitraum (z.B. April)
@@ -309,10 +330,10 @@ public class BlockpitExcelCreator {
         return new String[] { "Unknown", "Unknown", "Unknown" };
     }
 
-    private static void parseDepositContent(List<RowData> rowDataList, String content, String sentDate,
-            String messageType) {
+    private static void parseDepositContent(List<RowData> rowDataList, ExtractionGuard.Budget budget,
+            String content, String sentDate, String messageType) {
         // Extrahiere Betrag, Asset und Quelle
-        String[] extractedData = extractDataFromDepositType(content);
+        String[] extractedData = extractDataFromDepositType(budget, content);
         String amount = extractedData[0];
         String asset = extractedData[1];
         String source = extractedData[2];
@@ -338,14 +359,16 @@ public class BlockpitExcelCreator {
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromDepositType(String content) {
-        // Regex für Betrag und Asset (Fiat oder Krypto), unabhängig von der Position
-        // der Währung
-        String regex = "Amount:\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$|[\\d.,]+\\s?[A-Za-z]+|[A-Za-z]+\\s?[\\d.,]+)\\s*From:\\s*([\\w\\s\\d]+)";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex, java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher matcher = pattern.matcher(content);
+    // Regex für Betrag und Asset (Fiat oder Krypto), unabhängig von der Position
+    // der Währung
+    private static final java.util.regex.Pattern DEPOSIT_PATTERN = java.util.regex.Pattern.compile(
+            "Amount:\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$|[\\d.,]+\\s?[A-Za-z]+|[A-Za-z]+\\s?[\\d.,]+)\\s*From:\\s*([\\w\\s\\d]+)",
+            java.util.regex.Pattern.DOTALL);
+
+    private static String[] extractDataFromDepositType(ExtractionGuard.Budget budget, String content) {
+        java.util.regex.Matcher matcher = budget.find(DEPOSIT_PATTERN, content, "Amount:");
 
-        if (matcher.find()) {
+        if (matcher != null) {
             // Extrahiere Rohbetrag und Asset
             String rawAmount = matcher.group(1).trim();
             String source = matcher.group(2).trim();
@@ -400,9 +423,10 @@ public class BlockpitExcelCreator {
     }
 
     private static void parseWithdrawalToBankContent(
-            List<RowData> rowDataList, String content, String sentDate, String label) {
+            List<RowData> rowDataList, ExtractionGuard.Budget budget, String content, String sentDate,
+            String label) {
         // Extrahiere Daten aus der Nachricht
-        String[] extractedData = extractDataFromWithdrawalToBankType(content);
+        String[] extractedData = extractDataFromWithdrawalToBankType(budget, content);
         String rawAmount = extractedData[0];
         String toAddress = extractedData[1];
 
@@ -431,12 +455,15 @@ public class BlockpitExcelCreator {
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromWithdrawalToBankType(String content) {
-        String regex = "Amount:\\s*([\\d.,]+\\s?[€$a-zA-Z]+|[€$a-zA-Z]+\\s?[\\d.,]+)\\s*To:\\s*(.+)";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex, java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher matcher = pattern.matcher(content);
+    private static final java.util.regex.Pattern WITHDRAWAL_TO_BANK_PATTERN = java.util.regex.Pattern.compile(
+            "Amount:\\s*([\\d.,]+\\s?[€$a-zA-Z]+|[€$a-zA-Z]+\\s?[\\d.,]+)\\s*To:\\s*(.+)",
+            java.util.regex.Pattern.DOTALL);
+
+    private static String[] extractDataFromWithdrawalToBankType(ExtractionGuard.Budget budget, String content) {
+        // Im Guard-Modus endet "To:" spätestens am Ende des Suchfensters
+        java.util.regex.Matcher matcher = budget.find(WITHDRAWAL_TO_BANK_PATTERN, content, "Amount:");
 
-        if (matcher.find()) {
+        if (matcher != null) {
             String amount = matcher.group(1).trim(); // Betrag inkl. Währung
             String to = matcher.group(2).trim(); // Alles, was nach "To:" kommt (IBAN oder Wallet-Adresse)
             return new String[] { amount, to };
@@ -449,123 +476,54 @@ public class BlockpitExcelCreator {
 
     private static void parseWithdrawalToWalletContent(
             List<RowData> rowDataList, String content, String sentDate, String label) {
-        String[] extractedData = extractDataFromWithdrawalToWalletType(content);
-
-        String rawDate = extractedData[0];
-        String fee = extractedData[1];
-        String feeAsset = extractedData[2];
-        String walletAddress = extractedData[3];
-        String receivedAmount = extractedData[4];
-        String receivedAsset = extractedData[5];
-        String transactionId = extractedData[6];
+        MailFieldScanner.WalletWithdrawalFields extractedData = extractDataFromWithdrawalToWalletType(content);
 
         // Verarbeite Datum in UTC
-        String dateUTC = convertToUTC(rawDate);
+        String dateUTC = extractedData.sentAt != null ? formatInstantToUTC(extractedData.sentAt)
+                : convertToUTC(extractedData.rawDate);
 
         // Erstelle Kommentar
-        String comment = walletAddress + " will receive " + receivedAmount + " " + receivedAsset
-                + ", see transaction details of " + transactionId;
-
-        fee = fee.replace(",", "."); // Ersetze "," durch "."
-        fee = replaceAllExceptLast(fee, "."); // Entferne alle Punkte, außer den letzten
-        receivedAmount = receivedAmount.replace(",", "."); // Ersetze "," durch "."
-        receivedAmount = replaceAllExceptLast(receivedAmount, "."); // Entferne alle Punkte, außer den letzten
+        String comment = extractedData.walletAddress + " will receive " + extractedData.receivedAmountText + " "
+                + extractedData.receivedAsset + ", see transaction details of " + extractedData.transactionId;
 
         // Füge Daten zur Liste hinzu
         RowData rowData = new RowData(
-                dateUTC, INTEGRATION_NAME, label, receivedAsset,
-                receivedAmount,
+                dateUTC, INTEGRATION_NAME, label, extractedData.receivedAsset,
+                extractedData.receivedAmount,
                 "", "",
-                feeAsset, fee, comment, transactionId);
+                extractedData.feeAsset, extractedData.fee, comment, extractedData.transactionId);
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromWithdrawalToWalletType(String content) {
-        // Regex für die Hauptteile nach "on"
-        String mainRegex = "on\\s*(\\d{1,2}\\s[A-Za-z]{3,9},?\\s\\d{4}\\sat\\s\\d{2}:\\d{2}\\s[A-Z]+),\\s*and paid a network fee of\\s*([\\d.,]+)\\s*([A-Za-z0-9]+)\\.\\s*The wallet address\\s*([A-Za-z0-9]+)\\s*will receive\\s*([\\d.,]+)\\s*([A-Za-z0-9]+)";
-        String transactionIdRegex = "transaction ID is\\s*([A-Za-z0-9]+)";
-
-        // Matcher für Hauptteile
-        java.util.regex.Pattern mainPattern = java.util.regex.Pattern.compile(mainRegex,
-                java.util.regex.Pattern.DOTALL);
-        java.util.regex.Matcher mainMatcher = mainPattern.matcher(content);
-
-        if (mainMatcher.find()) {
-            String rawDatePart = mainMatcher.group(1).trim();
-            String fee = mainMatcher.group(2).trim();
-            String feeAsset = mainMatcher.group(3).trim();
-            String walletAddress = mainMatcher.group(4).trim();
-            String receivedAmount = mainMatcher.group(5).trim();
-            String receivedAsset = mainMatcher.group(6).trim();
-
-            // Matcher für Transaction ID
-            java.util.regex.Pattern transactionIdPattern = java.util.regex.Pattern.compile(transactionIdRegex);
-            java.util.regex.Matcher transactionIdMatcher = transactionIdPattern.matcher(content);
-            String transactionId = "Unknown";
-
-            if (transactionIdMatcher.find()) {
-                transactionId = transactionIdMatcher.group(1).trim();
-            } else {
-                System.err.println("No Transaction ID found in: " + content);
-            }
+    private static MailFieldScanner.WalletWithdrawalFields extractDataFromWithdrawalToWalletType(String content) {
+        // Datum, Gebühr, Adresse, Betrag und Transaction ID in einem Durchlauf; Beträge sind bereits normalisiert
+        MailFieldScanner.WalletWithdrawalFields fields = MailFieldScanner.scanWalletWithdrawal(content);
 
-            // Parse rawDatePart into structured components
-            String[] parsedDateComponents = parseDateComponents(rawDatePart);
-            if (parsedDateComponents != null) {
-                String formattedDate = parsedDateComponents[0]; // Raw Date in normalisiertem Format
-                return new String[] { formattedDate, fee, feeAsset, walletAddress, receivedAmount, receivedAsset,
-                        transactionId };
-            } else {
-                System.err.println("Failed to parse date components for: " + rawDatePart);
-            }
+        if (!fields.isMatched()) {
+            System.out.println("No relevant wallet withdrawal content found in: " + content);
+        } else if (!fields.hasTransactionId()) {
+            System.err.println("No Transaction ID found in: " + content);
         }
-
-        System.out.println("No relevant wallet withdrawal content found in: " + content);
-        return new String[] { "Unknown", "0", "Unknown", "Unknown", "0", "Unknown", "Unknown" };
+        return fields;
     }
 
-    // Zweiter Schritt: Zerlege und normalisiere den Datumsteil
-    private static String[] parseDateComponents(String rawDatePart) {
-        // Regex für die Datumsbestandteile
-        String dateRegex = "(\\d{1,2})\\s([A-Za-z]{3,9}),?\\s(\\d{4})\\sat\\s(\\d{2}:\\d{2})\\s([A-Z]+)";
-        java.util.regex.Pattern datePattern = java.util.regex.Pattern.compile(dateRegex);
-        java.util.regex.Matcher dateMatcher = datePattern.matcher(rawDatePart);
-
-        if (dateMatcher.find()) {
-            String day = dateMatcher.group(1).trim();
-            String month = dateMatcher.group(2).trim();
-            month = normalizeMonth(month); // Monat normalisieren
-            String year = dateMatcher.group(3).trim();
-            String time = dateMatcher.group(4).trim();
-            String timezone = dateMatcher.group(5).trim();
-
-            // Formatiere das rohe Datum
-            String rawDate = day + " " + month + " " + year + " " + time + " " + timezone;
-
-            return new String[] { rawDate, day, month, year, time, timezone };
-        }
-
-        // Fallback, falls keine gültigen Datumsteile gefunden wurden
-        System.err.println("Error parsing date components: " + rawDatePart);
-        return null;
-    }
+    private static final Map<String, String> MONTH_NAMES = Map.ofEntries(
+            Map.entry("Jan", "January"),
+            Map.entry("Feb", "February"),
+            Map.entry("Mar", "March"),
+            Map.entry("Apr", "April"),
+            Map.entry("May", "May"),
+            Map.entry("Jun", "June"),
+            Map.entry("Jul", "July"),
+            Map.entry("Aug", "August"),
+            Map.entry("Sep", "September"),
+            Map.entry("Oct", "October"),
+            Map.entry("Nov", "November"),
+            Map.entry("Dec", "December"));
 
     // Monat normalisieren
-    private static String normalizeMonth(String month) {
-        Map<String, String> monthMap = new HashMap<>();
-        monthMap.put("Jan", "January");
-        monthMap.put("Feb", "February");
-        monthMap.put("Mar", "March");
-        monthMap.put("Apr", "April");
-        monthMap.put("May", "May");
-        monthMap.put("Jun", "June");
-        monthMap.put("Jul", "July");
-        monthMap.put("Aug", "August");
-        monthMap.put("Sep", "September");
-        monthMap.put("Oct", "October");
-        monthMap.put("Nov", "November");
-        monthMap.put("Dec", "December");
-        return monthMap.getOrDefault(month, month);
+    static String normalizeMonth(String month) {
+        return MONTH_NAMES.getOrDefault(month, month);
     }
 
     private static String convertToUTC(String rawDate) {
@@ -596,97 +554,37 @@ public class BlockpitExcelCreator {
 
     private static void parseTradeContent(
             List<RowData> rowDataList, String content, String sentDate, String messageType) {
-        String[] extractedData = extractDataFromTradeType(content);
-
-        String rawDate = extractedData[0];
-        String incomingAmount = extractedData[1];
-        String incomingAsset = extractedData[2];
-        String finalCost = extractedData[3];
-        String costCurrency = extractedData[4];
+        MailFieldScanner.TradeFields extractedData = extractDataFromTradeType(content);
 
         // Verarbeite Datum in UTC
-        String dateUTC = convertToUTC(rawDate);
-
-        finalCost = finalCost.replace(",", "."); // Ersetze "," durch "."
-        finalCost = replaceAllExceptLast(finalCost, "."); // Entferne alle Punkte, außer den letzten
-
-        incomingAmount = incomingAmount.replace(",", "."); // Ersetze "," durch "."
-        incomingAmount = replaceAllExceptLast(incomingAmount, "."); // Entferne alle Punkte, außer den letzten
+        String dateUTC = extractedData.completedAt != null ? formatInstantToUTC(extractedData.completedAt)
+                : convertToUTC(extractedData.rawDate);
 
         // Kommentar
-        String comment = "Trade executed: Purchased " + incomingAmount + " " + incomingAsset +
-                " for " + finalCost + " " + costCurrency;
+        String comment = "Trade executed: Purchased " + extractedData.amount + " " + extractedData.asset +
+                " for " + extractedData.cost + " " + extractedData.costCurrency;
 
         // Füge die Daten zur Liste hinzu
         RowData rowData = new RowData(
-                dateUTC, INTEGRATION_NAME, messageType, costCurrency,
-                finalCost, incomingAsset, incomingAmount, "", "", comment, "");
+                dateUTC, INTEGRATION_NAME, messageType, extractedData.costCurrency,
+                extractedData.cost, extractedData.asset, extractedData.amount, "", "", comment, "");
         rowDataList.add(rowData);
     }
 
-    private static String[] extractDataFromTradeType(String content) {
-        String amountRegex = "Amount purchased:\\s*([\\d.,]+)\\s*([A-Za-z0-9]+)";
-        String costRegex = "Final cost:\\s*(€\\s?[\\d.,]+|[\\d.,]+\\s?€|\\$\\s?[\\d.,]+|[\\d.,]+\\s?\\$)";
-        String dateRegex = "Date completed:\\s*(\\d{1,2}\\s[A-Za-z]{3,9},?\\s\\d{4}\\sat\\s\\d{2}:\\d{2}\\s[A-Z]+)";
-
-        // Matcher für Bestandteile
-        java.util.regex.Pattern amountPattern = java.util.regex.Pattern.compile(amountRegex);
-        java.util.regex.Matcher amountMatcher = amountPattern.matcher(content);
+    private static MailFieldScanner.TradeFields extractDataFromTradeType(String content) {
+        // Betrag, Kosten und Datum in einem Durchlauf; Beträge sind bereits normalisiert
+        MailFieldScanner.TradeFields fields = MailFieldScanner.scanTrade(content);
 
-        java.util.regex.Pattern costPattern = java.util.regex.Pattern.compile(costRegex);
-        java.util.regex.Matcher costMatcher = costPattern.matcher(content);
-
-        java.util.regex.Pattern datePattern = java.util.regex.Pattern.compile(dateRegex);
-        java.util.regex.Matcher dateMatcher = datePattern.matcher(content);
-
-        String incomingAmount = "0";
-        String incomingAsset = "Unknown";
-        if (amountMatcher.find()) {
-            incomingAmount = amountMatcher.group(1).trim();
-            incomingAsset = amountMatcher.group(2).trim();
-        } else {
+        if (!fields.hasAmount()) {
             System.err.println("No amount purchased data found in: " + content);
         }
-
-        String finalCost = "0";
-        String costCurrency = "Unknown";
-        if (costMatcher.find()) {
-            String costRaw = costMatcher.group(1).trim();
-            if (costRaw.startsWith("€")) {
-                costCurrency = "EUR";
-                finalCost = costRaw.substring(1).trim();
-            } else if (costRaw.endsWith("€")) {
-                costCurrency = "EUR";
-                finalCost = costRaw.substring(0, costRaw.length() - 1).trim();
-            } else if (costRaw.startsWith("$")) {
-                costCurrency = "USD";
-                finalCost = costRaw.substring(1).trim();
-            } else if (costRaw.endsWith("$")) {
-                costCurrency = "USD";
-                finalCost = costRaw.substring(0, costRaw.length() - 1).trim();
-            } else {
-                System.err.println("Unknown cost format: " + costRaw);
-            }
-        } else {
+        if (!fields.hasCost()) {
             System.err.println("No final cost data found in: " + content);
         }
-
-        String rawDate = "Unknown";
-        if (dateMatcher.find()) {
-            rawDate = dateMatcher.group(1).trim();
-
-            // Datum normalisieren
-            String[] parsedDateComponents = parseDateComponents(rawDate);
-            if (parsedDateComponents != null) {
-                rawDate = parsedDateComponents[0]; // Normalisiertes Datum
-            } else {
-                System.err.println("Failed to parse date components for: " + rawDate);
-            }
-        } else {
+        if (!fields.hasDate()) {
             System.err.println("No date completed data found in: " + content);
         }
-
-        return new String[] { rawDate, incomingAmount, incomingAsset, finalCost, costCurrency };
+        return fields;
     }
 
     // Helper class to store row data
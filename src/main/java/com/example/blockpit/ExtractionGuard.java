@@ -0,0 +1,144 @@
+package com.example.blockpit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Limits how much work the regex extraction may spend on a single mail.
+ *
+ * Patterns are only tried at their anchor label, each attempt reads at most a
+ * bounded window, and the matcher input checks a per-mail deadline. The budget
+ * counts CPU time of the extracting thread, so GC pauses or other busy threads
+ * do not use it up. A mail that runs out of time fails with a
+ * {@link QuarantineException}. Settings (system properties):
+ * {@code guard.enabled} (default true), {@code guard.windowChars} (4096),
+ * {@code guard.maxMillisPerMail} (2000) and {@code guard.maxMailBytes} (10 MB).
+ */
+class ExtractionGuard {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    // Wall time is only a fallback for JVMs without per-thread CPU time
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported()
+            && THREADS.isThreadCpuTimeEnabled();
+
+    private final boolean enabled;
+    private final int windowChars;
+    private final long maxNanosPerMail;
+    private final long maxMailBytes;
+
+    ExtractionGuard(boolean enabled, int windowChars, long maxMillisPerMail, long maxMailBytes) {
+        this.enabled = enabled;
+        this.windowChars = windowChars;
+        this.maxNanosPerMail = maxMillisPerMail * 1_000_000L;
+        this.maxMailBytes = maxMailBytes;
+    }
+
+    static ExtractionGuard fromSystemProperties() {
+        return new ExtractionGuard(
+                Boolean.parseBoolean(System.getProperty("guard.enabled", "true")),
+                (int) positiveProperty("guard.windowChars", 4096, Integer.MAX_VALUE),
+                positiveProperty("guard.maxMillisPerMail", 2000L, Long.MAX_VALUE / 1_000_000L),
+                positiveProperty("guard.maxMailBytes", 10L * 1024 * 1024, Long.MAX_VALUE));
+    }
+
+    // A window or budget below 1 would reject every mail, so such values fall back to the default
+    private static long positiveProperty(String key, long defaultValue, long maxValue) {
+        long value = Long.getLong(key, defaultValue);
+        if (value < 1 || value > maxValue) {
+            System.err.println("Ignoring " + key + "=" + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /** Returns why a file of this size is rejected, or {@code null} if it may be read. */
+    String checkSize(long bytes) {
+        if (enabled && bytes > maxMailBytes) {
+            return "Mail has " + bytes + " bytes, limit is " + maxMailBytes;
+        }
+        return null;
+    }
+
+    /** Starts the time budget for one mail; it has to be used on the calling thread. */
+    Budget start() {
+        long start = now();
+        // A very large budget must not overflow into a deadline in the past
+        return new Budget(enabled && start < Long.MAX_VALUE - maxNanosPerMail ? start + maxNanosPerMail
+                : Long.MAX_VALUE);
+    }
+
+    private static long now() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    class Budget {
+        private final long deadline;
+
+        private Budget(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Finds the first match of the pattern at an occurrence of the anchor. The
+         * pattern has to start with the anchor; each attempt may only read the next
+         * windowChars characters. Returns {@code null} if nothing matches.
+         */
+        Matcher find(Pattern pattern, String content, String anchor) {
+            if (!enabled) {
+                Matcher matcher = pattern.matcher(content);
+                return matcher.find() ? matcher : null;
+            }
+
+            // The patterns start with their anchor, so a failed attempt stops right after it
+            Matcher matcher = pattern.matcher(new DeadlineCharSequence(content, deadline));
+            int index = content.indexOf(anchor);
+            while (index != -1) {
+                int end = (int) Math.min(content.length(), (long) index + windowChars);
+                matcher.region(index, end);
+                if (matcher.lookingAt()) {
+                    return matcher;
+                }
+                index = content.indexOf(anchor, index + 1);
+            }
+            return null;
+        }
+    }
+
+    // Content that fails once the deadline has passed; the regex engine reads through charAt
+    private static class DeadlineCharSequence implements CharSequence {
+        private final String content;
+        private final long deadline;
+        private int reads;
+
+        DeadlineCharSequence(String content, long deadline) {
+            this.content = content;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return content.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            // Checking the clock on every read would dominate the matching cost
+            if ((++reads & 0xFFF) == 0 && now() > deadline) {
+                throw new QuarantineException("Extraction exceeded its time budget");
+            }
+            return content.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return content.substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.blockpit;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MailDateFormat;
+import javax.mail.internet.MimeUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides from the MIME header block alone whether a mail is worth decoding.
+ *
+ * Mails with a placed-order subject are always skipped. A sender filter and a
+ * date window are optional and set with system properties:
+ * {@code prefilter.senders} (comma separated parts of the From header),
+ * {@code prefilter.from} and {@code prefilter.to} (inclusive, yyyy-MM-dd, UTC).
+ * The date window applies to the Date header, not to the dates inside the mail.
+ */
+class HeaderPrefilter {
+
+    // Headers larger than this are not checked; such mails are passed on to the decoder
+    private static final int MAX_HEADER_BYTES = 256 * 1024;
+
+    private final List<String> senders;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final AtomicInteger checked = new AtomicInteger();
+    private final AtomicInteger skippedBySubject = new AtomicInteger();
+    private final AtomicInteger skippedBySender = new AtomicInteger();
+    private final AtomicInteger skippedByDate = new AtomicInteger();
+
+    HeaderPrefilter(List<String> senders, LocalDate fromDate, LocalDate toDate) {
+        this.senders = senders;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    static HeaderPrefilter fromSystemProperties() {
+        List<String> senders = new ArrayList<>();
+        for (String sender : System.getProperty("prefilter.senders", "").split(",")) {
+            if (!sender.trim().isEmpty()) {
+                senders.add(sender.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return new HeaderPrefilter(senders, dateProperty("prefilter.from"), dateProperty("prefilter.to"));
+    }
+
+    /**
+     * Reads the header block up to and including the first blank line. The
+     * stream is left positioned at the start of the body.
+     */
+    static byte[] readHeaderBlock(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(4096);
+        int lineLength = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            header.write(b);
+            if (b == '\n') {
+                if (lineLength == 0) {
+                    break; // Empty line: end of the header
+                }
+                lineLength = 0;
+            } else if (b != '\r') {
+                lineLength++;
+            }
+            if (header.size() > MAX_HEADER_BYTES) {
+                break;
+            }
+        }
+        return header.toByteArray();
+    }
+
+    /** Returns why the mail can be skipped, or {@code null} if its body has to be decoded. */
+    String skipReason(byte[] headerBlock) {
+        checked.incrementAndGet();
+        if (headerBlock.length > MAX_HEADER_BYTES) {
+            return null;
+        }
+
+        InternetHeaders headers;
+        try {
+            headers = new InternetHeaders(new ByteArrayInputStream(headerBlock));
+        } catch (MessagingException e) {
+            return null; // The decoder reports the error
+        }
+
+        String subject = decode(headers.getHeader("Subject", null));
+        if (subject != null && BlockpitExcelCreator.isPlacedOrderSubject(subject)) {
+            skippedBySubject.incrementAndGet();
+            return "subject: " + subject;
+        }
+
+        if (!senders.isEmpty()) {
+            String from = decode(headers.getHeader("From", ","));
+            if (from != null && !matchesSender(from.toLowerCase(Locale.ROOT))) {
+                skippedBySender.incrementAndGet();
+                return "sender: " + from;
+            }
+        }
+
+        if (fromDate != null || toDate != null) {
+            LocalDate sent = parseDate(headers.getHeader("Date", null));
+            if (sent != null && ((fromDate != null && sent.isBefore(fromDate))
+                    || (toDate != null && sent.isAfter(toDate)))) {
+                skippedByDate.incrementAndGet();
+                return "date: " + sent;
+            }
+        }
+        return null;
+    }
+
+    String describe() {
+        return "Prefilter: checked=" + checked.get() + ", skipped by subject=" + skippedBySubject.get()
+                + ", by sender=" + skippedBySender.get() + ", by date=" + skippedByDate.get();
+    }
+
+    private boolean matchesSender(String from) {
+        for (String sender : senders) {
+            if (from.contains(sender)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return MimeUtility.decodeText(MimeUtility.unfold(value));
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            Date date = new MailDateFormat().parse(MimeUtility.unfold(value));
+            return date.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+        } catch (ParseException e) {
+            return null; // Without a valid date the mail is not filtered
+        }
+    }
+
+    private static LocalDate dateProperty(String key) {
+        String value = System.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            System.err.println("Ignoring " + key + "=" + value + ", expected yyyy-MM-dd");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.example.blockpit;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Single-pass scanner for the labelled fields of trade and wallet-withdrawal mails.
+ *
+ * Instead of running one regex per field, the text is walked once. At every
+ * label the value behind it is parsed in place with the same character
+ * classes the former regexes used. Amounts are normalized while they are
+ * read, and the results are immutable.
+ */
+class MailFieldScanner {
+
+    private static final String AMOUNT_PURCHASED = "Amount purchased:";
+    private static final String FINAL_COST = "Final cost:";
+    private static final String DATE_COMPLETED = "Date completed:";
+
+    private static final String ON = "on";
+    private static final String NETWORK_FEE = "and paid a network fee of";
+    private static final String WALLET_ADDRESS = "The wallet address";
+    private static final String WILL_RECEIVE = "will receive";
+    private static final String TRANSACTION_ID = "transaction ID is";
+
+    private static final String UNKNOWN = "Unknown";
+
+    private static final String[] MONTHS = {
+            "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"
+    };
+
+    // Offsets of the zone abbreviations used in the mails; others fall back to SimpleDateFormat
+    private static final Map<String, ZoneOffset> ZONE_OFFSETS = Map.of(
+            "CET", ZoneOffset.ofHours(1),
+            "CEST", ZoneOffset.ofHours(2),
+            "UTC", ZoneOffset.UTC,
+            "GMT", ZoneOffset.UTC);
+
+    private MailFieldScanner() {
+    }
+
+    static TradeFields scanTrade(String text) {
+        String[] amount = null;
+        String[] cost = null;
+        DateFields date = null;
+        int length = text.length();
+
+        for (int i = 0; i < length && (amount == null || cost == null || date == null); i++) {
+            char c = text.charAt(i);
+            Cursor cursor;
+
+            if (c == 'A' && amount == null && text.startsWith(AMOUNT_PURCHASED, i)) {
+                // Amount purchased:\s*([\d.,]+)\s*([A-Za-z0-9]+)
+                cursor = new Cursor(text, i + AMOUNT_PURCHASED.length());
+                cursor.skipSpaces();
+                amount = scanQuantity(cursor);
+                if (amount != null) {
+                    i = cursor.pos - 1;
+                }
+            } else if (c == 'F' && cost == null && text.startsWith(FINAL_COST, i)) {
+                cursor = new Cursor(text, i + FINAL_COST.length());
+                cursor.skipSpaces();
+                cost = scanMoney(cursor);
+                if (cost != null) {
+                    i = cursor.pos - 1;
+                }
+            } else if (c == 'D' && date == null && text.startsWith(DATE_COMPLETED, i)) {
+                cursor = new Cursor(text, i + DATE_COMPLETED.length());
+                cursor.skipSpaces();
+                date = scanDate(cursor);
+                if (date != null) {
+                    i = cursor.pos - 1;
+                }
+            }
+        }
+        return new TradeFields(amount, cost, date);
+    }
+
+    static WalletWithdrawalFields scanWalletWithdrawal(String text) {
+        WalletTransfer transfer = null;
+        String transactionId = null;
+        int length = text.length();
+
+        for (int i = 0; i < length && (transfer == null || transactionId == null); i++) {
+            char c = text.charAt(i);
+
+            if (c == 'o' && transfer == null && text.startsWith(ON, i)) {
+                Cursor cursor = new Cursor(text, i + ON.length());
+                transfer = scanWalletTransfer(cursor);
+                if (transfer != null) {
+                    i = cursor.pos - 1;
+                }
+            } else if (c == 't' && transactionId == null && text.startsWith(TRANSACTION_ID, i)) {
+                // transaction ID is\s*([A-Za-z0-9]+)
+                Cursor cursor = new Cursor(text, i + TRANSACTION_ID.length());
+                cursor.skipSpaces();
+                transactionId = cursor.run(MailFieldScanner::isAlphanumeric, 1);
+                if (transactionId != null) {
+                    i = cursor.pos - 1;
+                }
+            }
+        }
+        return new WalletWithdrawalFields(transfer, transactionId);
+    }
+
+    // on\s*(<date>),\s*and paid a network fee of\s*([\d.,]+)\s*([A-Za-z0-9]+)\.\s*The wallet address\s*
+    // ([A-Za-z0-9]+)\s*will receive\s*([\d.,]+)\s*([A-Za-z0-9]+)
+    private static WalletTransfer scanWalletTransfer(Cursor cursor) {
+        cursor.skipSpaces();
+        DateFields date = scanDate(cursor);
+        if (date == null || !cursor.literal(",")) {
+            return null;
+        }
+        cursor.skipSpaces();
+        if (!cursor.literal(NETWORK_FEE)) {
+            return null;
+        }
+        cursor.skipSpaces();
+        String[] fee = scanQuantity(cursor);
+        if (fee == null || !cursor.literal(".")) {
+            return null;
+        }
+        cursor.skipSpaces();
+        if (!cursor.literal(WALLET_ADDRESS)) {
+            return null;
+        }
+        cursor.skipSpaces();
+        String walletAddress = cursor.run(MailFieldScanner::isAlphanumeric, 1);
+        cursor.skipSpaces();
+        if (walletAddress == null || !cursor.literal(WILL_RECEIVE)) {
+            return null;
+        }
+        cursor.skipSpaces();
+        String[] received = scanQuantity(cursor);
+        if (received == null) {
+            return null;
+        }
+        return new WalletTransfer(date, fee, walletAddress, received);
+    }
+
+    // ([\d.,]+)\s*([A-Za-z0-9]+); returns { normalized amount, asset, amount as written }
+    private static String[] scanQuantity(Cursor cursor) {
+        int start = cursor.pos;
+        String amount = cursor.amount();
+        if (amount == null) {
+            return null;
+        }
+        String written = cursor.text.substring(start, cursor.pos);
+        cursor.skipSpaces();
+        String asset = cursor.run(MailFieldScanner::isAlphanumeric, 1);
+        return asset == null ? null : new String[] { amount, asset, written };
+    }
+
+    // €\s?[\d.,]+ | [\d.,]+\s?€ | \$\s?[\d.,]+ | [\d.,]+\s?\$; returns { normalized amount, currency }
+    private static String[] scanMoney(Cursor cursor) {
+        String currency = currencyOf(cursor.peek());
+        if (currency != null) {
+            cursor.pos++;
+            cursor.optionalSpace();
+            String cost = cursor.amount();
+            return cost == null ? null : new String[] { cost, currency };
+        }
+
+        String cost = cursor.amount();
+        if (cost == null) {
+            return null;
+        }
+        cursor.optionalSpace();
+        currency = currencyOf(cursor.peek());
+        if (currency == null) {
+            return null;
+        }
+        cursor.pos++;
+        return new String[] { cost, currency };
+    }
+
+    private static String currencyOf(int c) {
+        if (c == '€') {
+            return "EUR";
+        } else if (c == '$') {
+            return "USD";
+        }
+        return null;
+    }
+
+    // \d{1,2}\s[A-Za-z]{3,9},?\s\d{4}\sat\s\d{2}:\d{2}\s[A-Z]+
+    private static DateFields scanDate(Cursor cursor) {
+        DateFields date = new DateFields();
+        date.day = cursor.run(MailFieldScanner::isDigit, 1, 2);
+        if (date.day == null || !cursor.space()) {
+            return null;
+        }
+        date.month = cursor.run(MailFieldScanner::isLetter, 3, 9);
+        if (date.month == null) {
+            return null;
+        }
+        cursor.literal(",");
+        if (!cursor.space()) {
+            return null;
+        }
+        date.year = cursor.run(MailFieldScanner::isDigit, 4, 4);
+        if (date.year == null || !cursor.space() || !cursor.literal("at") || !cursor.space()) {
+            return null;
+        }
+        String hours = cursor.run(MailFieldScanner::isDigit, 2, 2);
+        if (hours == null || !cursor.literal(":")) {
+            return null;
+        }
+        String minutes = cursor.run(MailFieldScanner::isDigit, 2, 2);
+        if (minutes == null || !cursor.space()) {
+            return null;
+        }
+        date.time = hours + ":" + minutes;
+        date.timezone = cursor.run(MailFieldScanner::isUpperCase, 1);
+        return date.timezone == null ? null : date;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNumberChar(int c) {
+        return isDigit(c) || c == '.' || c == ',';
+    }
+
+    private static boolean isUpperCase(int c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLetter(int c) {
+        return isUpperCase(c) || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isAlphanumeric(int c) {
+        return isLetter(c) || isDigit(c);
+    }
+
+    // Same characters as the regex class \s
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // Position in the scanned text; all methods advance only on success
+    private static class Cursor {
+        private final String text;
+        private int pos;
+
+        Cursor(String text, int pos) {
+            this.text = text;
+            this.pos = pos;
+        }
+
+        int peek() {
+            return pos < text.length() ? text.charAt(pos) : -1;
+        }
+
+        void skipSpaces() {
+            while (isSpace(peek())) {
+                pos++;
+            }
+        }
+
+        boolean space() {
+            if (isSpace(peek())) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void optionalSpace() {
+            space();
+        }
+
+        boolean literal(String expected) {
+            if (text.startsWith(expected, pos)) {
+                pos += expected.length();
+                return true;
+            }
+            return false;
+        }
+
+        // [\d.,]+ with only the last "," or "." kept, as ".", e.g. "1.234,5" becomes "1234.5"
+        String amount() {
+            int end = pos;
+            int decimalPoint = -1;
+            boolean asWritten = true;
+            while (end < text.length() && isNumberChar(text.charAt(end))) {
+                char c = text.charAt(end);
+                if (c == '.' || c == ',') {
+                    asWritten &= decimalPoint == -1 && c == '.';
+                    decimalPoint = end;
+                }
+                end++;
+            }
+            if (end == pos) {
+                return null;
+            }
+
+            String amount;
+            if (asWritten) {
+                amount = text.substring(pos, end);
+            } else {
+                StringBuilder normalized = new StringBuilder(end - pos);
+                for (int i = pos; i < end; i++) {
+                    char c = text.charAt(i);
+                    if (i == decimalPoint) {
+                        normalized.append('.');
+                    } else if (c != '.' && c != ',') {
+                        normalized.append(c);
+                    }
+                }
+                amount = normalized.toString();
+            }
+            pos = end;
+            return amount;
+        }
+
+        String run(IntPredicate predicate, int min) {
+            return run(predicate, min, Integer.MAX_VALUE);
+        }
+
+        // Greedy run of matching characters; fails if its length is outside [min, max]
+        String run(IntPredicate predicate, int min, int max) {
+            int end = pos;
+            while (end < text.length() && predicate.test(text.charAt(end))) {
+                end++;
+            }
+            if (end - pos < min || end - pos > max) {
+                return null;
+            }
+            String value = text.substring(pos, end);
+            pos = end;
+            return value;
+        }
+    }
+
+    private static class DateFields {
+        String day;
+        String month;
+        String year;
+        String time;
+        String timezone;
+
+        // Same format parseDateComponents produced, e.g. "5 March 2024 10:00 CET"
+        String normalized() {
+            return day + " " + BlockpitExcelCreator.normalizeMonth(month) + " " + year + " " + time + " " + timezone;
+        }
+
+        // Returns null for months or zones that need the SimpleDateFormat fallback
+        Instant toInstant() {
+            ZoneOffset offset = ZONE_OFFSETS.get(timezone);
+            int monthNumber = monthNumber(month);
+            if (offset == null || monthNumber == 0) {
+                return null;
+            }
+            try {
+                LocalDateTime local = LocalDateTime.of(Integer.parseInt(year), monthNumber, Integer.parseInt(day),
+                        Integer.parseInt(time.substring(0, 2)), Integer.parseInt(time.substring(3, 5)));
+                return local.toInstant(offset);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        private static int monthNumber(String month) {
+            for (int i = 0; i < MONTHS.length; i++) {
+                String name = MONTHS[i];
+                if (name.equalsIgnoreCase(month) || name.substring(0, 3).equalsIgnoreCase(month)) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Fields of a trade mail. Amounts use "." as decimal point. Fields whose label
+     * was not found hold "0" or "Unknown"; {@link #hasAmount()} and the other
+     * checks tell them apart.
+     */
+    static final class TradeFields {
+        final String amount;
+        final String asset;
+        final String cost;
+        final String costCurrency;
+        final String rawDate;
+        /** {@code null} if the date was not found or needs the SimpleDateFormat fallback. */
+        final Instant completedAt;
+        private final boolean amountFound;
+        private final boolean costFound;
+        private final boolean dateFound;
+
+        private TradeFields(String[] amount, String[] cost, DateFields date) {
+            this.amountFound = amount != null;
+            this.costFound = cost != null;
+            this.dateFound = date != null;
+            this.amount = amountFound ? amount[0] : "0";
+            this.asset = amountFound ? amount[1] : UNKNOWN;
+            this.cost = costFound ? cost[0] : "0";
+            this.costCurrency = costFound ? cost[1] : UNKNOWN;
+            this.rawDate = dateFound ? date.normalized() : UNKNOWN;
+            this.completedAt = dateFound ? date.toInstant() : null;
+        }
+
+        boolean hasAmount() {
+            return amountFound;
+        }
+
+        boolean hasCost() {
+            return costFound;
+        }
+
+        boolean hasDate() {
+            return dateFound;
+        }
+    }
+
+    /**
+     * Fields of a wallet-withdrawal mail. Amounts use "." as decimal point. If the
+     * transfer text was not found, amounts hold "0" and the other fields "Unknown".
+     */
+    static final class WalletWithdrawalFields {
+        final String rawDate;
+        /** {@code null} if the date was not found or needs the SimpleDateFormat fallback. */
+        final Instant sentAt;
+        final String fee;
+        final String feeAsset;
+        final String walletAddress;
+        final String receivedAmount;
+        /** The received amount as written in the mail, for the comment. */
+        final String receivedAmountText;
+        final String receivedAsset;
+        final String transactionId;
+        private final boolean matched;
+        private final boolean transactionIdFound;
+
+        private WalletWithdrawalFields(WalletTransfer transfer, String transactionId) {
+            this.matched = transfer != null;
+            this.transactionIdFound = transactionId != null;
+            this.rawDate = matched ? transfer.date.normalized() : UNKNOWN;
+            this.sentAt = matched ? transfer.date.toInstant() : null;
+            this.fee = matched ? transfer.fee[0] : "0";
+            this.feeAsset = matched ? transfer.fee[1] : UNKNOWN;
+            this.walletAddress = matched ? transfer.walletAddress : UNKNOWN;
+            this.receivedAmount = matched ? transfer.received[0] : "0";
+            this.receivedAmountText = matched ? transfer.received[2] : "0";
+            this.receivedAsset = matched ? transfer.received[1] : UNKNOWN;
+            this.transactionId = transactionIdFound ? transactionId : UNKNOWN;
+        }
+
+        boolean isMatched() {
+            return matched;
+        }
+
+        boolean hasTransactionId() {
+            return transactionIdFound;
+        }
+    }
+
+    // The transfer sentence of a wallet withdrawal; the transaction ID is found separately
+    private static class WalletTransfer {
+        final DateFields date;
+        final String[] fee;
+        final String walletAddress;
+        final String[] received;
+
+        WalletTransfer(DateFields date, String[] fee, String walletAddress, String[] received) {
+            this.date = date;
+            this.fee = fee;
+            this.walletAddress = walletAddress;
+            this.received = received;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.blockpit;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Staged pipeline that overlaps file reading, MIME decoding and row extraction.
+ *
+ * The read stage only reads the header block first and drops mails that the
+ * {@link HeaderPrefilter} rejects, so their bodies are never read or decoded.
+ * Mails that exceed the {@link ExtractionGuard} limits are quarantined and the
+ * run continues with the next file.
+ * Stages are connected by bounded queues, so a slow stage blocks its producers
+ * instead of letting the backlog grow. Thread counts and queue capacities are
+ * read from system properties (e.g. {@code -Dpipeline.decode.threads=4}).
+ * If a stage thread dies from an unexpected failure, all stages are stopped
+ * and {@link #run(File[])} rethrows that failure.
+ */
+class MailPipeline {
+
+    private final int readThreads;
+    private final int decodeThreads;
+    private final int extractThreads;
+    private final Channel<RawMail> decodeQueue;
+    private final Channel<DecodedMail> extractQueue;
+    private final Channel<MailRows> sinkQueue;
+    private final long monitorMillis;
+    private final HeaderPrefilter prefilter;
+    private final ExtractionGuard guard;
+    private final Quarantine quarantine;
+    private final List<Thread> stageThreads = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    MailPipeline(File defaultQuarantineFolder) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        this.readThreads = intProperty("pipeline.read.threads", 2);
+        this.decodeThreads = intProperty("pipeline.decode.threads", cpus);
+        this.extractThreads = intProperty("pipeline.extract.threads", Math.max(1, cpus / 2));
+        this.decodeQueue = new Channel<>("decode", intProperty("pipeline.decode.queue", 64), readThreads,
+                decodeThreads);
+        this.extractQueue = new Channel<>("extract", intProperty("pipeline.extract.queue", 256), decodeThreads,
+                extractThreads);
+        this.sinkQueue = new Channel<>("sink", intProperty("pipeline.sink.queue", 256), extractThreads, 1);
+        this.monitorMillis = Long.getLong("pipeline.monitorMillis", 0L);
+        this.prefilter = HeaderPrefilter.fromSystemProperties();
+        this.guard = ExtractionGuard.fromSystemProperties();
+        String quarantineFolder = System.getProperty("guard.quarantineDir");
+        this.quarantine = new Quarantine(
+                quarantineFolder != null ? new File(quarantineFolder) : defaultQuarantineFolder);
+    }
+
+    /**
+     * Runs all files through the pipeline and returns the extracted rows in
+     * input-file order.
+     */
+    List<BlockpitExcelCreator.RowData> run(File[] files) throws InterruptedException {
+        AtomicInteger nextFile = new AtomicInteger();
+        List<MailRows> collected = new ArrayList<>();
+        quarantine.clear();
+
+        for (int i = 0; i < readThreads; i++) {
+            stageThreads.add(start("pipeline-read-" + i, () -> {
+                try {
+                    int index;
+                    while ((index = nextFile.getAndIncrement()) < files.length) {
+                        File file = files[index];
+                        try {
+                            RawMail raw = readMail(index, file);
+                            if (raw != null) {
+                                decodeQueue.put(raw);
+                            }
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            System.err.println("Error processing file: " + file.getName() + " - " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    decodeQueue.producerDone();
+                }
+            }));
+        }
+
+        for (int i = 0; i < decodeThreads; i++) {
+            stageThreads.add(start("pipeline-decode-" + i, () -> {
+                try {
+                    RawMail raw;
+                    while ((raw = decodeQueue.take()) != null) {
+                        try {
+                            extractQueue.put(BlockpitExcelCreator.decodeMail(raw));
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            System.err.println("Error processing file: " + raw.file.getName() + " - " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    extractQueue.producerDone();
+                }
+            }));
+        }
+
+        for (int i = 0; i < extractThreads; i++) {
+            stageThreads.add(start("pipeline-extract-" + i, () -> {
+                try {
+                    DecodedMail mail;
+                    while ((mail = extractQueue.take()) != null) {
+                        try {
+                            List<BlockpitExcelCreator.RowData> rows = BlockpitExcelCreator.extractRows(mail,
+                                    guard.start());
+                            sinkQueue.put(new MailRows(mail.sequence, rows));
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (QuarantineException e) {
+                            quarantine.add(mail.file, e.getMessage());
+                        } catch (Exception e) {
+                            System.err.println("Error processing file: " + mail.file.getName() + " - " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    sinkQueue.producerDone();
+                }
+            }));
+        }
+
+        stageThreads.add(start("pipeline-sink", () -> {
+            MailRows rows;
+            while ((rows = sinkQueue.take()) != null) {
+                if (!rows.rows.isEmpty()) {
+                    collected.add(rows);
+                }
+            }
+        }));
+
+        Thread monitor = null;
+        if (monitorMillis > 0) {
+            monitor = new Thread(this::monitorQueues, "pipeline-monitor");
+            monitor.setDaemon(true);
+            monitor.start();
+        }
+
+        try {
+            for (Thread thread : stageThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            abort(e);
+            throw e;
+        } finally {
+            if (monitor != null) {
+                monitor.interrupt();
+            }
+        }
+
+        Throwable stageFailure = failure.get();
+        if (stageFailure instanceof Error) {
+            throw (Error) stageFailure;
+        } else if (stageFailure instanceof RuntimeException) {
+            throw (RuntimeException) stageFailure;
+        } else if (stageFailure != null) {
+            throw new IllegalStateException("Pipeline stage failed", stageFailure);
+        }
+
+        printQueueStatistics();
+
+        // Workers finish out of order; restore the file order so equal dates keep a stable order
+        collected.sort(Comparator.comparingInt(rows -> rows.sequence));
+        List<BlockpitExcelCreator.RowData> rowDataList = new ArrayList<>();
+        for (MailRows rows : collected) {
+            rowDataList.addAll(rows.rows);
+        }
+        return rowDataList;
+    }
+
+    // Returns null if the prefilter rejects the mail; its body is not read then
+    private RawMail readMail(int index, File file) throws IOException {
+        String sizeProblem = guard.checkSize(file.length());
+        if (sizeProblem != null) {
+            quarantine.addWithoutCopy(file, sizeProblem);
+            return null;
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] header = HeaderPrefilter.readHeaderBlock(in);
+            String skipReason = prefilter.skipReason(header);
+            if (skipReason != null) {
+                System.out.println("Skipped processing for file: " + file.getName() + " (" + skipReason + ")");
+                return null;
+            }
+
+            byte[] body = in.readAllBytes();
+            byte[] data = Arrays.copyOf(header, header.length + body.length);
+            System.arraycopy(body, 0, data, header.length, body.length);
+            return new RawMail(index, file, data);
+        }
+    }
+
+    private void monitorQueues() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(monitorMillis);
+                System.out.println("Queue depth: " + decodeQueue.describe() + ", " + extractQueue.describe() + ", "
+                        + sinkQueue.describe());
+            }
+        } catch (InterruptedException e) {
+            // Pipeline finished
+        }
+    }
+
+    private void printQueueStatistics() {
+        System.out.println(prefilter.describe());
+        System.out.println(quarantine.describe());
+        System.out.println("Pipeline threads: read=" + readThreads + ", decode=" + decodeThreads + ", extract="
+                + extractThreads + ", sink=1");
+        for (Channel<?> channel : Arrays.asList(decodeQueue, extractQueue, sinkQueue)) {
+            System.out.println("Queue " + channel.name + ": capacity=" + channel.capacity() + ", peak depth="
+                    + channel.peakDepth() + ", producer waits=" + channel.fullWaits.get());
+        }
+    }
+
+    private Thread start(String name, StageTask task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                // Without this stage its neighbours would block forever on a full or empty queue
+                System.err.println("Pipeline stage " + Thread.currentThread().getName() + " failed: " + t);
+                abort(t);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    // Records the first failure and stops every stage
+    private void abort(Throwable cause) {
+        if (!failure.compareAndSet(null, cause)) {
+            return;
+        }
+        decodeQueue.abort();
+        extractQueue.abort();
+        sinkQueue.abort();
+        for (Thread thread : stageThreads) {
+            if (thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        int value = Integer.getInteger(key, defaultValue);
+        if (value < 1) {
+            System.err.println("Ignoring " + key + "=" + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private interface StageTask {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Bounded queue between two stages. Every consumer receives one end marker
+     * once all producers have called {@link #producerDone()}. After
+     * {@link #abort()} no call blocks anymore.
+     */
+    static class Channel<T> {
+        private static final Object END = new Object();
+
+        private final String name;
+        private final BlockingQueue<Object> queue;
+        private final int capacity;
+        private final int consumers;
+        private final AtomicInteger openProducers;
+        private final AtomicInteger peakDepth = new AtomicInteger();
+        private final AtomicInteger fullWaits = new AtomicInteger();
+        private volatile boolean aborted;
+
+        Channel(String name, int capacity, int producers, int consumers) {
+            this.name = name;
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.consumers = consumers;
+            this.openProducers = new AtomicInteger(producers);
+        }
+
+        void put(T item) throws InterruptedException {
+            checkAborted();
+            if (!queue.offer(item)) {
+                // Backpressure: the consumer stage is behind, wait for room
+                fullWaits.incrementAndGet();
+                queue.put(item);
+            }
+            peakDepth.accumulateAndGet(queue.size(), Math::max);
+        }
+
+        /** Returns the next item, or {@code null} once all producers are done. */
+        @SuppressWarnings("unchecked")
+        T take() throws InterruptedException {
+            checkAborted();
+            Object item = queue.take();
+            return item == END ? null : (T) item;
+        }
+
+        void producerDone() throws InterruptedException {
+            if (openProducers.decrementAndGet() == 0 && !aborted) {
+                for (int i = 0; i < consumers; i++) {
+                    queue.put(END);
+                }
+            }
+        }
+
+        // Drops queued items so that producers blocked on a full queue can continue and see the flag
+        void abort() {
+            aborted = true;
+            queue.clear();
+        }
+
+        private void checkAborted() throws InterruptedException {
+            if (aborted) {
+                throw new InterruptedException("Pipeline aborted");
+            }
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        int depth() {
+            return queue.size();
+        }
+
+        int peakDepth() {
+            return peakDepth.get();
+        }
+
+        String describe() {
+            return name + "=" + depth() + "/" + capacity;
+        }
+    }
+
+    // Raw file content handed from the read stage to the decode stage
+    static class RawMail {
+        final int sequence;
+        final File file;
+        final byte[] data;
+
+        RawMail(int sequence, File file, byte[] data) {
+            this.sequence = sequence;
+            this.file = file;
+            this.data = data;
+        }
+    }
+
+    // Decoded headers and plain-text body handed to the extract stage
+    static class DecodedMail {
+        final int sequence;
+        final File file;
+        final String subject;
+        final String content;
+        final String sentDate;
+
+        DecodedMail(int sequence, File file, String subject, String content, String sentDate) {
+            this.sequence = sequence;
+            this.file = file;
+            this.subject = subject;
+            this.content = content;
+            this.sentDate = sentDate;
+        }
+    }
+
+    // Rows extracted from one mail
+    static class MailRows {
+        final int sequence;
+        final List<BlockpitExcelCreator.RowData> rows;
+
+        MailRows(int sequence, List<BlockpitExcelCreator.RowData> rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.blockpit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects mails that exceeded the guard limits. Each file is copied into the
+ * quarantine folder, and a line with its size and reason is added to report.txt.
+ * Oversized files are only listed in the report. The folder is only created
+ * when the first file is quarantined, and {@link #clear()} removes what an
+ * earlier run left behind.
+ */
+class Quarantine {
+
+    private final File folder;
+    private final AtomicInteger count = new AtomicInteger();
+
+    Quarantine(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Removes the report and the copies listed in it by an earlier run, so the
+     * report only describes the current run. Other files in the folder are kept.
+     */
+    void clear() {
+        File report = new File(folder, "report.txt");
+        if (!report.isFile()) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    Files.deleteIfExists(new File(folder, new File(line.substring(0, tab)).getName()).toPath());
+                }
+            }
+            Files.delete(report.toPath());
+        } catch (IOException e) {
+            System.err.println("Error clearing quarantine folder: " + folder + " - " + e.getMessage());
+        }
+        // Only succeeds if nothing else is left in the folder
+        folder.delete();
+    }
+
+    /** Copies the file into the quarantine folder and lists it in the report. */
+    void add(File file, String reason) {
+        // Copy without holding the report lock so other threads can quarantine at the same time
+        try {
+            createFolder();
+            Files.copy(file.toPath(), new File(folder, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error quarantining file: " + file.getName() + " - " + e.getMessage());
+        }
+        report(file, reason);
+    }
+
+    /** Lists the file in the report without copying it, e.g. because it is too large. */
+    void addWithoutCopy(File file, String reason) {
+        report(file, reason + " (not copied)");
+    }
+
+    String describe() {
+        int quarantined = count.get();
+        return quarantined == 0 ? "Quarantine: no files"
+                : "Quarantine: " + quarantined + " files, see " + new File(folder, "report.txt");
+    }
+
+    private synchronized void report(File file, String reason) {
+        count.incrementAndGet();
+        System.err.println("Quarantined file: " + file.getName() + " - " + reason);
+        try {
+            createFolder();
+            String line = file.getPath() + "\t" + file.length() + " bytes\t" + reason + System.lineSeparator();
+            Files.write(new File(folder, "report.txt").toPath(), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Error writing quarantine report for: " + file.getName() + " - " + e.getMessage());
+        }
+    }
+
+    private void createFolder() throws IOException {
+        // mkdirs() may lose a race against another thread, so check the result instead of its return value
+        folder.mkdirs();
+        if (!folder.isDirectory()) {
+            throw new IOException("Cannot create " + folder);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.blockpit;
+
+/**
+ * Thrown when a mail cannot be processed within the guard limits. The file is
+ * quarantined instead of being reported as a normal processing error.
+ */
+class QuarantineException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    QuarantineException(String message) {
+        super(message);
+    }
+}